@@ -0,0 +1,367 @@
+package com.tictacgo;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Window;
+import android.view.animation.AnimationUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * FrameProfiler records the duration of every frame drawn while the board is animating, tagged
+ * with the animation phase it belongs to, and writes them to a compact trace file.
+ *
+ * From Android N, frames are timed with FrameMetrics, which splits each frame into layout and draw
+ * time, and over-budget frames are attributed to whichever of layout, draw or everything else took
+ * longest. GC pauses are not reported separately and fall under everything else. On older devices
+ * frames are timed from the interval between Choreographer callbacks, with no breakdown.
+ *
+ * FrameMetrics are reported a frame or more after the frame is drawn, so each phase change is
+ * stored with the Choreographer frame time it happened in, and reported frames are matched to a
+ * phase by their intended vsync time. A frame which itself started late, after skipped vsyncs,
+ * keeps its original intended vsync and may be tagged with the phase before it.
+ *
+ * The trace is big-endian: the magic number "TTG2", an int frame count, and then for every frame a
+ * phase byte followed by the total, layout and draw durations as ints in microseconds. The layout
+ * and draw durations are -1 when they are not known. Traces starting with "TTGF" are from an
+ * older format, with only the phase byte and total duration for each frame.
+ */
+public class FrameProfiler implements Choreographer.FrameCallback {
+    private static final String TAG = "FrameProfiler";
+    private static final int TRACE_MAGIC = 0x54544732; // "TTG2"
+    private static final int MAX_FRAMES = 4096;
+
+    /**
+     * The most phase changes kept while waiting for their frames to be reported by FrameMetrics.
+     */
+    private static final int MAX_PENDING_PHASES = 8;
+
+    /**
+     * The frame budget at 60 frames per second, in nanoseconds.
+     */
+    private static final long FRAME_BUDGET_NANOS = 1000000000L / 60;
+
+    /**
+     * The phases of a board animation.
+     */
+    public enum Phase {
+        FIRST_HALF,
+        SECOND_HALF,
+        REBUILD
+    }
+
+    /**
+     * Whether anything is recorded. When false, every method returns immediately.
+     */
+    private final boolean enabled;
+
+    /**
+     * Where dropped frames are counted.
+     */
+    private final TurnMetrics metrics;
+
+    /**
+     * The recorded frames. Only allocated when enabled.
+     */
+    private final byte[] phases;
+    private final int[] durations;
+    private final int[] layoutDurations;
+    private final int[] drawDurations;
+    private int frameCount;
+
+    private Phase phase;
+
+    /**
+     * Whether a frame callback is currently posted.
+     */
+    private boolean running;
+
+    /**
+     * Whether to stop after the next recorded frame. Only used with Choreographer.
+     */
+    private boolean stopping;
+
+    /**
+     * The time of the previous frame, or 0 if no frame has been seen since starting.
+     */
+    private long lastFrameNanos;
+
+    /**
+     * The phase changes, oldest first, whose frames have not been reported by FrameMetrics yet,
+     * and the frame times they happened in.
+     */
+    private final Phase[] pendingPhases = new Phase[MAX_PENDING_PHASES];
+    private final long[] pendingPhaseNanos = new long[MAX_PENDING_PHASES];
+    private int pendingPhaseCount;
+
+    /**
+     * The phase of the frames FrameMetrics is currently reporting, or null if they were drawn
+     * before the animation started.
+     */
+    private Phase reportedPhase;
+
+    /**
+     * The frame time in which {@link FrameProfiler#stop()} was called, or Long.MAX_VALUE if it
+     * has not been. Only used with FrameMetrics.
+     */
+    private long stopNanos = Long.MAX_VALUE;
+
+    /**
+     * The Window.OnFrameMetricsAvailableListener in use, or null if frames are timed with
+     * Choreographer. Kept as an Object so this class still loads before Android N.
+     */
+    private Object frameMetricsListener;
+
+    /**
+     * Constructor
+     *
+     * @param enabled Whether to record anything. Release builds should pass false.
+     * @param metrics The TurnMetrics in which to count dropped frames.
+     */
+    public FrameProfiler(boolean enabled, TurnMetrics metrics) {
+        this.enabled = enabled;
+        this.metrics = metrics;
+
+        phases = enabled ? new byte[MAX_FRAMES] : null;
+        durations = enabled ? new int[MAX_FRAMES] : null;
+        layoutDurations = enabled ? new int[MAX_FRAMES] : null;
+        drawDurations = enabled ? new int[MAX_FRAMES] : null;
+    }
+
+    /**
+     * Time frames with FrameMetrics from the given Window, where the platform supports it.
+     *
+     * @param window The Window the board is drawn in.
+     */
+    public void attach(Window window) {
+        if (enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            attachFrameMetrics(window);
+        }
+    }
+
+    /**
+     * Stop receiving FrameMetrics from the given Window.
+     *
+     * @param window The Window passed to {@link FrameProfiler#attach(Window)}.
+     */
+    public void detach(Window window) {
+        if (frameMetricsListener != null) {
+            detachFrameMetrics(window);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private void attachFrameMetrics(Window window) {
+        Window.OnFrameMetricsAvailableListener listener =
+                new Window.OnFrameMetricsAvailableListener() {
+            @Override
+            public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics,
+                                                int dropCountSinceLastInvocation) {
+                if (!running) {
+                    return;
+                }
+
+                long vsync = frameMetrics.getMetric(FrameMetrics.INTENDED_VSYNC_TIMESTAMP);
+
+                // Catch up with every phase change made before this frame was drawn
+                while (pendingPhaseCount > 0 && pendingPhaseNanos[0] <= vsync) {
+                    reportedPhase = pendingPhases[0];
+                    removeOldestPendingPhase();
+                }
+
+                if (reportedPhase == null) {
+                    return;
+                }
+
+                long total = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+                recordFrame(reportedPhase, total,
+                        frameMetrics.getMetric(FrameMetrics.LAYOUT_MEASURE_DURATION),
+                        frameMetrics.getMetric(FrameMetrics.DRAW_DURATION),
+                        (int) ((total - 1) / FRAME_BUDGET_NANOS));
+
+                if (vsync >= stopNanos) {
+                    // This frame drew the result of the last phase
+                    running = false;
+                    reportedPhase = null;
+                    pendingPhaseCount = 0;
+                    stopNanos = Long.MAX_VALUE;
+                }
+            }
+        };
+
+        // Deliver on the main thread, like the Choreographer callbacks, so no locking is needed.
+        window.addOnFrameMetricsAvailableListener(listener, new Handler(Looper.getMainLooper()));
+        frameMetricsListener = listener;
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private void detachFrameMetrics(Window window) {
+        window.removeOnFrameMetricsAvailableListener(
+                (Window.OnFrameMetricsAvailableListener) frameMetricsListener);
+        frameMetricsListener = null;
+    }
+
+    /**
+     * Start recording frames, or keep recording them, tagged with the given phase.
+     *
+     * @param phase The animation phase of the upcoming frames.
+     */
+    public void setPhase(Phase phase) {
+        if (!enabled) {
+            return;
+        }
+
+        this.phase = phase;
+        stopping = false;
+
+        if (frameMetricsListener != null) {
+            running = true;
+            stopNanos = Long.MAX_VALUE;
+
+            if (pendingPhaseCount == MAX_PENDING_PHASES) {
+                removeOldestPendingPhase();
+            }
+            pendingPhases[pendingPhaseCount] = phase;
+            pendingPhaseNanos[pendingPhaseCount] = currentFrameNanos();
+            pendingPhaseCount++;
+
+        } else if (!running) {
+            running = true;
+            lastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Stop recording once the next frame, which draws the result of the current phase, has been
+     * recorded.
+     */
+    public void stop() {
+        stopping = true;
+
+        if (frameMetricsListener != null) {
+            stopNanos = currentFrameNanos();
+        }
+    }
+
+    /**
+     * Get the time of the Choreographer frame being processed. From Android N, AnimationUtils is
+     * locked to that frame time while a frame is processed; outside of a frame it returns the
+     * current time, and the next frame drawn has a later vsync.
+     *
+     * @return The current frame time in nanoseconds.
+     */
+    private static long currentFrameNanos() {
+        return AnimationUtils.currentAnimationTimeMillis() * 1000000L;
+    }
+
+    private void removeOldestPendingPhase() {
+        pendingPhaseCount--;
+        System.arraycopy(pendingPhases, 1, pendingPhases, 0, pendingPhaseCount);
+        System.arraycopy(pendingPhaseNanos, 1, pendingPhaseNanos, 0, pendingPhaseCount);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (lastFrameNanos != 0) {
+            long duration = frameTimeNanos - lastFrameNanos;
+
+            // The interval spans whole vsyncs, so any beyond the first were dropped.
+            recordFrame(phase, duration, -1, -1, (int) (duration / FRAME_BUDGET_NANOS) - 1);
+
+            if (stopping) {
+                running = false;
+                return;
+            }
+        }
+
+        lastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Record a single frame.
+     *
+     * @param phase The animation phase the frame was drawn in.
+     * @param totalNanos The duration of the frame.
+     * @param layoutNanos The time spent in layout and measure, or -1 if unknown.
+     * @param drawNanos The time spent drawing, or -1 if unknown.
+     * @param dropped The number of frames dropped because this one was slow.
+     */
+    private void recordFrame(Phase phase, long totalNanos, long layoutNanos, long drawNanos,
+                             int dropped) {
+        if (frameCount < MAX_FRAMES) {
+            phases[frameCount] = (byte) phase.ordinal();
+            durations[frameCount] = (int) (totalNanos / 1000);
+            layoutDurations[frameCount] = layoutNanos < 0 ? -1 : (int) (layoutNanos / 1000);
+            drawDurations[frameCount] = drawNanos < 0 ? -1 : (int) (drawNanos / 1000);
+            frameCount++;
+        }
+
+        if (totalNanos <= FRAME_BUDGET_NANOS) {
+            return;
+        }
+
+        metrics.increment(TurnMetrics.Counter.DROPPED_FRAMES, dropped);
+
+        if (layoutNanos >= 0 && drawNanos >= 0) {
+            long otherNanos = totalNanos - layoutNanos - drawNanos;
+
+            if (layoutNanos >= drawNanos && layoutNanos >= otherNanos) {
+                metrics.increment(TurnMetrics.Counter.SLOW_LAYOUT_FRAMES, 1);
+            } else if (drawNanos >= otherNanos) {
+                metrics.increment(TurnMetrics.Counter.SLOW_DRAW_FRAMES, 1);
+            } else {
+                metrics.increment(TurnMetrics.Counter.SLOW_OTHER_FRAMES, 1);
+            }
+        }
+    }
+
+    /**
+     * Append the frames recorded so far to the given trace file as a new trace, and clear them.
+     *
+     * @param file The trace file. It is created if it does not exist.
+     */
+    public void write(File file) {
+        if (!enabled || frameCount == 0) {
+            return;
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            out.writeInt(TRACE_MAGIC);
+            out.writeInt(frameCount);
+
+            for (int i = 0; i < frameCount; i++) {
+                out.writeByte(phases[i]);
+                out.writeInt(durations[i]);
+                out.writeInt(layoutDurations[i]);
+                out.writeInt(drawDurations[i]);
+            }
+
+            frameCount = 0;
+
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write frame trace to " + file, e);
+
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not close " + file, e);
+                }
+            }
+        }
+    }
+}
@@ -8,10 +8,13 @@ import android.app.FragmentTransaction;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 import android.widget.FrameLayout;
 import android.widget.FrameLayout.LayoutParams;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.tictacgo.DirectionPickerFragment.OnDirectionPickedListener;
@@ -19,6 +22,7 @@ import com.tictacgo.data.Board;
 import com.tictacgo.data.Board.Player;
 import com.tictacgo.data.Piece;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,8 +35,17 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
     private static final String BOARD_KEY = "board";
     private static final String TURN_KEY = "activityTurn";
     private static final String FINISHED_KEY = "finished";
+    private static final String ANIMATING_KEY = "animating";
     private static final String PLAYER_X_NAME_KEY = "playerXName";
     private static final String PLAYER_O_NAME_KEY = "playerOName";
+    private static final String METRICS_FILE_NAME = "turn_metrics.txt";
+    private static final String FRAME_TRACE_FILE_NAME = "frame_trace.bin";
+
+    /**
+     * Whether debug builds count the allocations of each Board call in a turn. Off by default,
+     * since counting slows down every allocation and so skews the recorded timings.
+     */
+    private static final boolean COUNT_ALLOCATIONS = false;
 
     /**
      * The Board of the game
@@ -59,6 +72,18 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
      */
     private boolean finished;
 
+    /**
+     * Whether the Pieces are currently moving. Used to disable clicking, so the Board is not
+     * changed while the animation listeners are resolving collisions on it.
+     */
+    private boolean animating;
+
+    /**
+     * The state of the Board from just before the Pieces started moving. While animating, the
+     * Board is between collision phases, so this is saved in its place.
+     */
+    private Bundle movementStartState;
+
     /**
      * The X Player's name
      */
@@ -71,8 +96,19 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
 
     private FragmentManager fragmentManager;
 
+    /**
+     * Timings and counters for the turn loop. Only recorded in debug builds.
+     */
+    private final TurnMetrics metrics = new TurnMetrics(BuildConfig.DEBUG, COUNT_ALLOCATIONS);
+
+    /**
+     * Frame durations of the board animations. Only recorded in debug builds.
+     */
+    private final FrameProfiler frameProfiler = new FrameProfiler(BuildConfig.DEBUG, metrics);
+
     @Override
     protected void onCreate(Bundle state) {
+        final long startupStart = metrics.start();
         super.onCreate(state);
         setContentView(R.layout.activity_tic_tac_go_game);
 
@@ -80,6 +116,23 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
 
         Intent intent = getIntent();
         fl = (FrameLayout) findViewById(R.id.gameBoard);
+        frameProfiler.attach(getWindow());
+
+        // Count the Pieces and clear spaces churned on the board each turn. The DirectionPicker is
+        // also added to the board, but its root is a TableLayout rather than an ImageView.
+        fl.setOnHierarchyChangeListener(new ViewGroup.OnHierarchyChangeListener() {
+            public void onChildViewAdded(View parent, View child) {
+                if (child instanceof ImageView) {
+                    metrics.increment(TurnMetrics.Counter.VIEWS_ADDED, 1);
+                }
+            }
+
+            public void onChildViewRemoved(View parent, View child) {
+                if (child instanceof ImageView) {
+                    metrics.increment(TurnMetrics.Counter.VIEWS_REMOVED, 1);
+                }
+            }
+        });
 
         if (state == null) {
             turn = (Player) intent.getSerializableExtra(TicTacGoMenuActivity.PLAYER_KEY);
@@ -92,6 +145,7 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
             turn = ((Player) state.getSerializable(TURN_KEY));
             board = new Board(fl.getHeight(), getBaseContext(), state.getBundle(BOARD_KEY));
             finished = state.getBoolean(FINISHED_KEY);
+            animating = state.getBoolean(ANIMATING_KEY); // The movement is restarted once sized
             playerXName = state.getString(PLAYER_X_NAME_KEY);
             playerOName = state.getString(PLAYER_O_NAME_KEY);
         }
@@ -100,9 +154,40 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
         ((TextView) findViewById(R.id.gamePlayerOneName)).setText(playerXName);
         ((TextView) findViewById(R.id.gamePlayerTwoName)).setText(playerOName);
 
+        // Size and fill the board as soon as its height is known, before the first frame is drawn
+        final View background = findViewById(R.id.background);
+        background.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                background.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                int height = background.getHeight();
+                fl.getLayoutParams().height = height;
+                fl.getLayoutParams().width = height;
+                board.setHeight(height);
+                updateBoard();
+                updateTurnIndicator();
+
+                if (animating) {
+                    // The state was saved while the Pieces were moving
+                    startMovement();
+                }
+
+                metrics.record(TurnMetrics.Stage.STARTUP, startupStart);
+
+                // Skip this frame, so the first one drawn already shows the sized board
+                return false;
+            }
+        });
+
         // What to do when an empty space is clicked
         onPieceClicked = new View.OnClickListener() {
             public void onClick(View v) {
+                if (animating) {
+                    return;
+                }
+
                 if (!finished) {
                     int height = fl.getHeight();
 
@@ -146,8 +231,15 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
             public void onClick(View v) {
                 getFragmentManager().popBackStackImmediate(GameEndFragment.class.getName(),
                         FragmentManager.POP_BACK_STACK_INCLUSIVE);
+                if (animating) {
+                    // The running animation is abandoned. If another one starts, it resumes
+                    // profiling when it sets its first phase.
+                    frameProfiler.stop();
+                }
+
                 board = new Board(turn, fl.getHeight(), getBaseContext());
                 finished = false;
+                animating = false;
                 updateBoard();
                 updateTurnIndicator();
             }
@@ -159,28 +251,32 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
         super.onSaveInstanceState(state);
 
         state.putSerializable(TURN_KEY, turn);
-        state.putBundle(BOARD_KEY, board.getBundle());
+        state.putBundle(BOARD_KEY, animating ? movementStartState : board.getBundle());
         state.putBoolean(FINISHED_KEY, finished);
+        state.putBoolean(ANIMATING_KEY, animating);
         state.putString(PLAYER_X_NAME_KEY, playerXName);
         state.putString(PLAYER_O_NAME_KEY, playerOName);
     }
 
     @Override
-    public void onWindowFocusChanged(boolean hasFocus) {
-        super.onWindowFocusChanged(hasFocus);
-
-        if (hasFocus) {
-            int height = findViewById(R.id.background).getHeight();
-            fl.getLayoutParams().height = findViewById(R.id.background).getHeight();
-            fl.getLayoutParams().width = findViewById(R.id.background).getHeight();
-            board.setHeight(height);
-            updateBoard();
-            updateTurnIndicator();
-        }
+    protected void onDestroy() {
+        super.onDestroy();
+
+        frameProfiler.detach(getWindow());
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        metrics.dump(new File(getFilesDir(), METRICS_FILE_NAME));
+        frameProfiler.write(new File(getFilesDir(), FRAME_TRACE_FILE_NAME));
     }
 
     @Override
     public void onDirectionPicked(int dirVertical, int dirHorizontal, int row, int column) {
+        long placementStart = metrics.start();
+        metrics.increment(TurnMetrics.Counter.PLACEMENTS, 1);
         getFragmentManager().popBackStack();
 
         board.makePiece(row, column);
@@ -188,25 +284,50 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
 
         if (board.willMove()) {
             // Only move the pieces after both players have moved.
-            board.updatePositionsNoCollisions();
-            animateBoard();
+            startMovement();
 
         } else {
             board.nextTurn();
             updateTurnIndicator();
             updateClearPieces();
         }
+
+        metrics.record(TurnMetrics.Stage.PLACEMENT, placementStart);
+    }
+
+    /**
+     * Move the Pieces and animate the board, keeping the state from before the move to save in
+     * case the Activity is stopped before the animation finishes.
+     */
+    private void startMovement() {
+        movementStartState = board.getBundle();
+        board.updatePositionsNoCollisions();
+        animateBoard();
     }
 
     /**
      * Animate the board, first halfway, and then the second half.
+     *
+     * If a new game is started before the animation finishes, the remaining listeners do nothing,
+     * as they belong to the old Board.
      */
     private void animateBoard() {
+        final Board animatingBoard = board;
+        animating = true;
+
+        metrics.startAllocations();
         final List<Piece> dummies = board.getDummyPieces();
+        metrics.recordAllocations(TurnMetrics.Allocations.DUMMY_PIECES);
+
         for (Piece dummy : dummies) {
             fl.addView(dummy);
         }
+
+        metrics.startAllocations();
         Animator halfwayAnimator = board.getHalfwayAnimator();
+        metrics.recordAllocations(TurnMetrics.Allocations.HALFWAY_ANIMATOR);
+        final long firstHalfStart = metrics.start();
+        frameProfiler.setPhase(FrameProfiler.Phase.FIRST_HALF);
 
         halfwayAnimator.addListener(new AnimatorListenerAdapter() {
             /**
@@ -216,9 +337,23 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
              */
             @Override
             public void onAnimationEnd(Animator animator) {
+                if (board != animatingBoard) {
+                    return;
+                }
+
+                metrics.record(TurnMetrics.Stage.FIRST_HALF_ANIMATION, firstHalfStart);
+
+                long halfwayCollisionsStart = metrics.start();
+                metrics.startAllocations();
                 board.resolveHalfwayCollisions();
+                metrics.recordAllocations(TurnMetrics.Allocations.HALFWAY_COLLISIONS);
+                metrics.record(TurnMetrics.Stage.HALFWAY_COLLISIONS, halfwayCollisionsStart);
 
+                metrics.startAllocations();
                 Animator halfwayAnimatorTwo = board.getHalfwayAnimator();
+                metrics.recordAllocations(TurnMetrics.Allocations.HALFWAY_ANIMATOR);
+                final long secondHalfStart = metrics.start();
+                frameProfiler.setPhase(FrameProfiler.Phase.SECOND_HALF);
                 halfwayAnimatorTwo.addListener(new AnimatorListenerAdapter() {
                     /**
                      * Here, the animations are completely finished. We need to resolve any
@@ -227,11 +362,32 @@ public class TicTacGoGameActivity extends Activity implements OnDirectionPickedL
                      */
                     @Override
                     public void onAnimationEnd(Animator animator) {
+                        if (board != animatingBoard) {
+                            return;
+                        }
+
+                        animating = false;
+                        metrics.record(TurnMetrics.Stage.SECOND_HALF_ANIMATION, secondHalfStart);
+
+                        long fullCollisionsStart = metrics.start();
+                        metrics.startAllocations();
                         board.resolveFullCollisions();
+                        metrics.recordAllocations(TurnMetrics.Allocations.FULL_COLLISIONS);
+                        metrics.record(TurnMetrics.Stage.FULL_COLLISIONS, fullCollisionsStart);
+
                         board.nextTurn();
-                        notifyWinners(board.getWinners());
+
+                        long winnersStart = metrics.start();
+                        metrics.startAllocations();
+                        Map<Player, Integer> winners = board.getWinners();
+                        metrics.recordAllocations(TurnMetrics.Allocations.WINNERS);
+                        metrics.record(TurnMetrics.Stage.WINNERS, winnersStart);
+
+                        frameProfiler.setPhase(FrameProfiler.Phase.REBUILD);
+                        notifyWinners(winners);
                         updateTurnIndicator();
                         updateBoard();
+                        frameProfiler.stop();
                     }
                 });
 
@@ -0,0 +1,259 @@
+package com.tictacgo;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * TurnMetrics keeps counters, duration histograms and allocation counts for the stages of a turn,
+ * so that regressions in the game loop can be caught on real devices. All recording happens on the
+ * main thread, alongside the animations it measures, so no synchronization is needed.
+ */
+public class TurnMetrics {
+    private static final String TAG = "TurnMetrics";
+
+    /**
+     * The number of histogram buckets. Bucket i counts durations below 2^i microseconds, and the
+     * last bucket counts everything slower.
+     */
+    private static final int BUCKET_COUNT = 24;
+
+    /**
+     * The timed stages of a turn, and of getting the board on screen.
+     */
+    public enum Stage {
+        STARTUP,
+        PLACEMENT,
+        FIRST_HALF_ANIMATION,
+        SECOND_HALF_ANIMATION,
+        HALFWAY_COLLISIONS,
+        FULL_COLLISIONS,
+        WINNERS
+    }
+
+    /**
+     * The plain event counters of a turn.
+     */
+    public enum Counter {
+        PLACEMENTS,
+        VIEWS_ADDED,
+        VIEWS_REMOVED,
+        DROPPED_FRAMES,
+        SLOW_LAYOUT_FRAMES,
+        SLOW_DRAW_FRAMES,
+        SLOW_OTHER_FRAMES
+    }
+
+    /**
+     * The synchronous Board calls of a turn whose allocations are counted.
+     */
+    public enum Allocations {
+        DUMMY_PIECES,
+        HALFWAY_ANIMATOR,
+        HALFWAY_COLLISIONS,
+        FULL_COLLISIONS,
+        WINNERS
+    }
+
+    /**
+     * Whether anything is recorded. When false, every method returns immediately.
+     */
+    private final boolean enabled;
+
+    /**
+     * Whether allocations are counted. Counting slows down every allocation while it is on, which
+     * skews the timings, so it is only turned on around the measured calls.
+     */
+    private final boolean countAllocations;
+
+    private final long[] stageCounts = new long[Stage.values().length];
+    private final long[] stageTotals = new long[Stage.values().length];
+    private final long[] stageMaximums = new long[Stage.values().length];
+    private final long[][] stageBuckets = new long[Stage.values().length][BUCKET_COUNT];
+    private final long[] counters = new long[Counter.values().length];
+
+    private final long[] allocationRuns = new long[Allocations.values().length];
+    private final long[] allocationCounts = new long[Allocations.values().length];
+    private final long[] allocationSizes = new long[Allocations.values().length];
+    private final long[] allocationMaxSizes = new long[Allocations.values().length];
+
+    /**
+     * Constructor
+     *
+     * @param enabled Whether to record anything. Release builds should pass false.
+     * @param countAllocations Whether to also count allocations. Only takes effect if enabled.
+     */
+    public TurnMetrics(boolean enabled, boolean countAllocations) {
+        this.enabled = enabled;
+        this.countAllocations = enabled && countAllocations;
+    }
+
+    /**
+     * Get the start time to later pass to {@link TurnMetrics#record(Stage, long)}.
+     *
+     * @return The current time in nanoseconds, or 0 if recording is disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the duration of a stage which began at the given time.
+     *
+     * @param stage The stage which just finished.
+     * @param startNanos The value returned by {@link TurnMetrics#start()} when the stage began.
+     */
+    public void record(Stage stage, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        int i = stage.ordinal();
+
+        stageCounts[i]++;
+        stageTotals[i] += micros;
+        stageMaximums[i] = Math.max(stageMaximums[i], micros);
+
+        // The bucket is the number of bits needed to represent the duration.
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        stageBuckets[i][Math.min(bucket, BUCKET_COUNT - 1)]++;
+    }
+
+    /**
+     * Turn on allocation counting for this thread, from zero. Each call must be followed by
+     * {@link TurnMetrics#recordAllocations(Allocations)} once the measured call returns.
+     *
+     * The per-thread allocation counters are deprecated, but have no replacement which can be
+     * turned on for just a few calls.
+     */
+    @SuppressWarnings("deprecation")
+    public void startAllocations() {
+        if (countAllocations) {
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
+            Debug.startAllocCounting();
+        }
+    }
+
+    /**
+     * Turn off allocation counting, and record the allocations made on this thread since
+     * {@link TurnMetrics#startAllocations()}.
+     *
+     * @param allocations The call which just returned.
+     */
+    @SuppressWarnings("deprecation")
+    public void recordAllocations(Allocations allocations) {
+        if (!countAllocations) {
+            return;
+        }
+
+        Debug.stopAllocCounting();
+
+        int i = allocations.ordinal();
+        long count = Debug.getThreadAllocCount();
+        long size = Debug.getThreadAllocSize();
+
+        allocationRuns[i]++;
+        allocationCounts[i] += count;
+        allocationSizes[i] += size;
+        allocationMaxSizes[i] = Math.max(allocationMaxSizes[i], size);
+    }
+
+    /**
+     * Add the given amount to a counter.
+     *
+     * @param counter The counter to increase.
+     * @param amount The amount to add.
+     */
+    public void increment(Counter counter, int amount) {
+        if (enabled) {
+            counters[counter.ordinal()] += amount;
+        }
+    }
+
+    /**
+     * Append a summary of everything recorded so far to the given file, and reset all values.
+     *
+     * @param file The dump file. It is created if it does not exist.
+     */
+    public void dump(File file) {
+        if (!enabled) {
+            return;
+        }
+
+        Writer writer = null;
+        try {
+            writer = new FileWriter(file, true);
+            writer.write("# " + System.currentTimeMillis() + "\n");
+
+            for (Counter counter : Counter.values()) {
+                writer.write(counter + " " + counters[counter.ordinal()] + "\n");
+            }
+
+            // stage count totalMicros maxMicros bucket0 ... bucketN
+            for (Stage stage : Stage.values()) {
+                int i = stage.ordinal();
+                StringBuilder line = new StringBuilder();
+                line.append(stage).append(' ').append(stageCounts[i]).append(' ')
+                        .append(stageTotals[i]).append(' ').append(stageMaximums[i]);
+                for (long bucket : stageBuckets[i]) {
+                    line.append(' ').append(bucket);
+                }
+                writer.write(line.append('\n').toString());
+            }
+
+            // allocations runs objectsPerRun bytesPerRun maxBytes
+            for (Allocations allocations : Allocations.values()) {
+                int i = allocations.ordinal();
+                long runs = Math.max(allocationRuns[i], 1);
+                writer.write("ALLOCATIONS_" + allocations + " " + allocationRuns[i] + " "
+                        + allocationCounts[i] / runs + " " + allocationSizes[i] / runs + " "
+                        + allocationMaxSizes[i] + "\n");
+            }
+
+            reset();
+
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write turn metrics to " + file, e);
+
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not close " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    private void reset() {
+        for (int i = 0; i < stageCounts.length; i++) {
+            stageCounts[i] = 0;
+            stageTotals[i] = 0;
+            stageMaximums[i] = 0;
+            for (int j = 0; j < BUCKET_COUNT; j++) {
+                stageBuckets[i][j] = 0;
+            }
+        }
+
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = 0;
+        }
+
+        for (int i = 0; i < allocationRuns.length; i++) {
+            allocationRuns[i] = 0;
+            allocationCounts[i] = 0;
+            allocationSizes[i] = 0;
+            allocationMaxSizes[i] = 0;
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package com.tictacgo.data;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import android.animation.Animator;
 import android.animation.AnimatorSet;
@@ -24,11 +22,19 @@ public class Board {
 
     private static final String TURN_KEY = "boardTurn";
     private static final String START_TURN_KEY = "boardStartTurn";
-    private static final String PIECES_ROW_KEY = "piecesRow";
-    private static final String PIECES_COLUMN_KEY = "piecesColumn";
-    private static final String PIECES_DIR_HORIZ_KEY = "piecesDirHorizontal";
-    private static final String PIECES_DIR_VERT_KEY = "piecesDirVertical";
-    private static final String PIECES_PLAYER_KEY = "piecesPlayer";
+    private static final String PIECES_KEY = "pieces";
+
+    /**
+     * Bit layout of a Piece packed by {@link Board#packPiece(Piece)}. Row and column take two bits
+     * each, the directions are stored offset by one so they fit in two bits each, and the owner
+     * takes a single bit.
+     */
+    private static final int PACKED_ROW_SHIFT = 0;
+    private static final int PACKED_COLUMN_SHIFT = 2;
+    private static final int PACKED_DIR_VERT_SHIFT = 4;
+    private static final int PACKED_DIR_HORIZ_SHIFT = 6;
+    private static final int PACKED_PLAYER_SHIFT = 8;
+    private static final int PACKED_FIELD_MASK = 0x3;
 
     public enum Player {
         X,
@@ -40,6 +46,12 @@ public class Board {
      */
     public static final int SIDE_LENGTH = 3;
 
+    /**
+     * Every row, column, and diagonal on the board, as the {row, column} of each of their Spaces.
+     * Built once so checking for winners does not allocate per line.
+     */
+    private static final int[][][] LINES = buildLines();
+
     /**
      * The player who currently has their turn.
      */
@@ -146,10 +158,6 @@ public class Board {
                 row.add(new Space());
             }
 
-            for (int j = 0; j < SIDE_LENGTH; j++) {
-                row.add(new Space());
-            }
-
             spaces.add(row);
         }
 
@@ -162,18 +170,11 @@ public class Board {
         // Load the Pieces
         pieces = new ArrayList<>(SIDE_LENGTH * SIDE_LENGTH * 2);
 
-        int[] columns = state.getIntArray(PIECES_COLUMN_KEY);
-        int[] rows = state.getIntArray(PIECES_ROW_KEY);
-        int[] dirHoriz = state.getIntArray(PIECES_DIR_HORIZ_KEY);
-        int[] dirVert = state.getIntArray(PIECES_DIR_VERT_KEY);
-        String[] players = state.getStringArray(PIECES_PLAYER_KEY);
-
-        for (int i = 0; i < columns.length; i++) {
-            Piece piece = new Piece(rows[i], columns[i], dirVert[i], dirHoriz[i],
-                    players[i].equals("X") ? Player.X : Player.O, height / 3, context);
+        for (int packed : state.getIntArray(PIECES_KEY)) {
+            Piece piece = unpackPiece(packed);
 
             pieces.add(piece);
-            getSpace(rows[i], columns[i]).addPiece(piece);
+            getSpace(piece.getRow(), piece.getColumn()).addPiece(piece);
         }
     }
 
@@ -189,31 +190,46 @@ public class Board {
         state.putSerializable(TURN_KEY, turn);
         state.putSerializable(START_TURN_KEY, startTurn);
 
-        int[] columns = new int[pieces.size()];
-        int[] rows = new int[pieces.size()];
-        int[] dirHoriz = new int[pieces.size()];
-        int[] dirVert = new int[pieces.size()];
-        String[] players = new String[pieces.size()];
-
+        int[] packed = new int[pieces.size()];
         for (int i = 0; i < pieces.size(); i++) {
-            Piece piece = pieces.get(i);
-
-            columns[i] = piece.getColumn();
-            rows[i] = piece.getRow();
-            dirHoriz[i] = piece.getHorizontalDirection();
-            dirVert[i] = piece.getVerticalDirection();
-            players[i] = piece.getPlayer() == Player.X ? "X" : "O";
+            packed[i] = packPiece(pieces.get(i));
         }
 
-        state.putIntArray(PIECES_COLUMN_KEY, columns);
-        state.putIntArray(PIECES_ROW_KEY, rows);
-        state.putIntArray(PIECES_DIR_HORIZ_KEY, dirHoriz);
-        state.putIntArray(PIECES_DIR_VERT_KEY, dirVert);
-        state.putStringArray(PIECES_PLAYER_KEY, players);
+        state.putIntArray(PIECES_KEY, packed);
 
         return state;
     }
 
+    /**
+     * Pack the position, direction and owner of the given Piece into a single int.
+     *
+     * @param piece The Piece to pack.
+     * @return The packed Piece, which can be restored with {@link Board#unpackPiece(int)}.
+     */
+    private static int packPiece(Piece piece) {
+        return piece.getRow() << PACKED_ROW_SHIFT
+                | piece.getColumn() << PACKED_COLUMN_SHIFT
+                | (piece.getVerticalDirection() + 1) << PACKED_DIR_VERT_SHIFT
+                | (piece.getHorizontalDirection() + 1) << PACKED_DIR_HORIZ_SHIFT
+                | (piece.isO() ? 1 : 0) << PACKED_PLAYER_SHIFT;
+    }
+
+    /**
+     * Create a new Piece on this Board from a value packed by {@link Board#packPiece(Piece)}.
+     *
+     * @param packed The packed Piece.
+     * @return A new Piece with the packed position, direction and owner.
+     */
+    private Piece unpackPiece(int packed) {
+        int row = (packed >> PACKED_ROW_SHIFT) & PACKED_FIELD_MASK;
+        int column = (packed >> PACKED_COLUMN_SHIFT) & PACKED_FIELD_MASK;
+        int dirVert = ((packed >> PACKED_DIR_VERT_SHIFT) & PACKED_FIELD_MASK) - 1;
+        int dirHoriz = ((packed >> PACKED_DIR_HORIZ_SHIFT) & PACKED_FIELD_MASK) - 1;
+        Player player = ((packed >> PACKED_PLAYER_SHIFT) & 1) == 1 ? Player.O : Player.X;
+
+        return new Piece(row, column, dirVert, dirHoriz, player, height / 3, context);
+    }
+
     /**
      * Tests if the board is full
      *
@@ -236,116 +252,73 @@ public class Board {
      * @return a count of how many winning combinations each player has.
      */
     public Map<Player, Integer> getWinners() {
-        /**
-         * A map of Players to the count of their winning combinations.
-         */
-        Map<Player, Integer> winners = new HashMap<>();
-        winners.put(Player.X, 0);
-        winners.put(Player.O, 0);
+        int xCount = 0;
+        int oCount = 0;
 
-        // Sum all rows, columns, and diagonals, looking for all Xs or all Os.
-        // Rows
-        for (List<Space> row : spaces) {
-            mergeWinners(getWinners(row), winners);
-        }
+        // Check every row, column, and diagonal, looking for all Xs or all Os.
+        for (int[][] line : LINES) {
+            // TODO: This allows spaces with multiple Pieces in them to still contribute to a win.
+            // A Player may only win once per row, column, or diagonal.
+            boolean xWins = true;
+            boolean oWins = true;
 
-        // Columns
-        for (int col = 0; col < SIDE_LENGTH; col++) {
-            ArrayList<Space> columnSpaces = new ArrayList<>(SIDE_LENGTH);
+            for (int[] cell : line) {
+                Space space = getSpace(cell[0], cell[1]);
 
-            for (List<Space> row : spaces) {
-              columnSpaces.add(row.get(col));
-            }
+                if (!space.hasX()) {
+                    xWins = false;
+                }
 
-            mergeWinners(getWinners(columnSpaces), winners);
-        }
+                if (!space.hasO()) {
+                    oWins = false;
+                }
 
-        // Top left to bottom right diagonal
-        int row = 0;
-        int col = 0;
-        ArrayList<Space> diagSpaces = new ArrayList<>(SIDE_LENGTH);
-        while (row < SIDE_LENGTH && col < SIDE_LENGTH) {
-            diagSpaces.add(spaces.get(row).get(col));
-            row++;
-            col++;
-        }
+                if (!xWins && !oWins) {
+                    break;
+                }
+            }
 
-        mergeWinners(getWinners(diagSpaces), winners);
+            if (xWins) {
+                xCount++;
+            }
 
-        // Top right to bottom left diagonal
-        diagSpaces.clear();
-        row = 0;
-        col = SIDE_LENGTH - 1;
-        while (row < SIDE_LENGTH && col >= 0) {
-            diagSpaces.add(spaces.get(row).get(col));
-            row++;
-            col--;
+            if (oWins) {
+                oCount++;
+            }
         }
 
-        mergeWinners(getWinners(diagSpaces), winners);
+        /**
+         * A map of Players to the count of their winning combinations.
+         */
+        Map<Player, Integer> winners = new EnumMap<>(Player.class);
+        winners.put(Player.X, xCount);
+        winners.put(Player.O, oCount);
 
         return winners;
     }
 
     /**
-     * Figures out if there is a winner in the given Spaces. A winner must be in every single Space
-     * to win.
+     * Build the table of every row, column, and diagonal on the board.
      *
-     * @param toCheck A List of the Spaces to check for a winner. This should be an entire row,
-     *                column, or diagonal of Spaces.
-     * @return A Set of the Players who won in this List of Spaces.
+     * @return An array of lines, each of which is an array of the {row, column} of its Spaces.
      */
-    private Set<Player> getWinners(List<Space> toCheck) {
-        // TODO: This allows spaces with multiple Pieces in them to still contribute to a win.
-        // We don't need to map to a count here because a Player may only win once per row, column,
-        // or diagonal.
-        Set<Player> winners = new HashSet<>(2);
-
-        boolean xWins = true;
-        boolean oWins = true;
-
-        for (Space space : toCheck) {
-          if (!space.hasX()) {
-            xWins = false;
-          }
-
-          if (!space.hasO()) {
-            oWins = false;
-          }
-
-          if (!xWins && !oWins) {
-            return winners;
-          }
-        }
+    private static int[][][] buildLines() {
+        int[][][] lines = new int[SIDE_LENGTH * 2 + 2][SIDE_LENGTH][];
 
-        if (xWins) {
-          winners.add(Player.X);
-        }
-
-        if (oWins) {
-          winners.add(Player.O);
-        }
+        for (int i = 0; i < SIDE_LENGTH; i++) {
+            for (int j = 0; j < SIDE_LENGTH; j++) {
+                lines[i][j] = new int[] {i, j}; // Rows
+                lines[SIDE_LENGTH + i][j] = new int[] {j, i}; // Columns
+            }
 
-        return winners;
-    }
+            // Top left to bottom right diagonal
+            lines[SIDE_LENGTH * 2][i] = new int[] {i, i};
 
-    /**
-     * Merges the winners from an individual row, column, or diagonal with the running sum of
-     * overall winners.
-     *
-     * This method modifies its input parameter sum.
-     *
-     * @param winners The set of winners from an individual row, column, or diagonal.
-     * @param sum The running total of wins for each Player.
-     */
-    private void mergeWinners(Set<Player> winners, Map<Player, Integer> sum) {
-        if (winners.contains(Player.X)) {
-            sum.put(Player.X, sum.get(Player.X) + 1);
+            // Top right to bottom left diagonal
+            lines[SIDE_LENGTH * 2 + 1][i] = new int[] {i, SIDE_LENGTH - 1 - i};
         }
 
-        if (winners.contains(Player.O)) {
-            sum.put(Player.O, sum.get(Player.O) + 1);
-        }
+        return lines;
     }
 
     /**
@@ -403,8 +376,10 @@ public class Board {
      *  Both cross
      */
     public void resolveHalfwayCollisions() {
+        List<Piece> collision = new ArrayList<>(4);
+
         for (int i = 0; i < pieces.size() - 1; i++) {
-            List<Piece> collision = new ArrayList<>(4);
+            collision.clear();
             collision.add(pieces.get(i));
             for (int j = i + 1; j < pieces.size(); j++) { //For every Piece after the current one.
                 /**
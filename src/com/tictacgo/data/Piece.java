@@ -5,11 +5,9 @@ import android.animation.AnimatorSet;
 import android.animation.PropertyValuesHolder;
 import android.animation.ValueAnimator;
 import android.content.Context;
-import android.graphics.drawable.Drawable;
 import android.view.Gravity;
 import android.widget.ImageView;
 import android.widget.FrameLayout.LayoutParams;
-import android.support.v4.content.ContextCompat;
 
 import com.tictacgo.Angles;
 import com.tictacgo.R;
@@ -24,15 +22,6 @@ import java.util.List;
  */
 public class Piece extends ImageView {
 
-    private final Drawable X_FULL_DRAWABLE = ContextCompat.getDrawable(getContext(),
-            R.drawable.piece_x);
-    private final Drawable X_DIR_DRAWABLE = ContextCompat.getDrawable(getContext(),
-            R.drawable.piece_x_direction);
-    private final Drawable O_FULL_DRAWABLE = ContextCompat.getDrawable(getContext(),
-            R.drawable.piece_o);
-    private final Drawable O_DIR_DRAWABLE = ContextCompat.getDrawable(getContext(),
-            R.drawable.piece_o_direction);
-
     /**
      * An Integer Array representing the position of the Piece.
      *
@@ -69,6 +58,11 @@ public class Piece extends ImageView {
      */
     private List<Piece> dummies;
 
+    /**
+     * The drawable resource this Piece currently shows, or 0 if none has been set yet.
+     */
+    private int imageResource;
+
     /**
      * Constructor
      *
@@ -240,9 +234,9 @@ public class Piece extends ImageView {
      */
     public void updateImageResourceFullPiece() {
         if (isX()) {
-            setImageDrawable(X_FULL_DRAWABLE);
+            updateImageResource(R.drawable.piece_x);
         } else { //Piece is an o
-            setImageDrawable(O_FULL_DRAWABLE);
+            updateImageResource(R.drawable.piece_o);
         }
     }
 
@@ -251,9 +245,24 @@ public class Piece extends ImageView {
     */
     public void updateImageResourceDirectionOnly() {
         if (isX()) {
-            setImageDrawable(X_DIR_DRAWABLE);
+            updateImageResource(R.drawable.piece_x_direction);
         } else { //Piece is an o
-            setImageDrawable(O_DIR_DRAWABLE);
+            updateImageResource(R.drawable.piece_o_direction);
+        }
+    }
+
+    /**
+     * Sets the drawable resource for this Piece, if it is not already showing it.
+     *
+     * ImageView.setImageResource creates a new Drawable and invalidates the view on every call,
+     * even with an unchanged resource, and these updates run for every Piece each turn.
+     *
+     * @param id The drawable resource to show.
+     */
+    private void updateImageResource(int id) {
+        if (id != imageResource) {
+            imageResource = id;
+            setImageResource(id);
         }
     }
 
@@ -263,7 +272,7 @@ public class Piece extends ImageView {
      * @return A List of dummy Pieces for wrapping around the edges of the Board.
      */
     public void updateDummyPieces() {
-        dummies = new ArrayList<>(3);
+        dummies.clear();
 
         if (getHorizontalDirection() == -1 && getLastColumn() == 0) {
             // Wrapped around the left edge